@@ -6,10 +6,12 @@ import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.GregorianCalendar;
 import java.util.HashMap;
+import java.util.HashSet;
 
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
@@ -20,20 +22,39 @@ import javax.swing.event.ChangeListener;
  */
 public class CalendarModel{
 
+	private static final int PREFETCH_WINDOW = 1;
+	private static final int MONTH_CACHE_SIZE = 6;
 	private int maxDays;
 	private int selectedDay;
+	private long nextEventId = 1;
 	private HashMap<String, ArrayList<Event>> eventMap = new HashMap<>();
+	private HashMap<Long, Event> eventIndex = new HashMap<>();
 	private ArrayList<ChangeListener> listeners = new ArrayList<>();
 	private GregorianCalendar cal = new GregorianCalendar();
 	private boolean monthChanged = false;
+	private MonthCache monthCache;
+	private HashMap<Integer, Long> monthChanges = new HashMap<>();
+	private MonthLayout shownLayout;
 	
 	/**
 	 * Constructor
 	 */
 	public CalendarModel() {
+		this(true);
+	}
+
+	/**
+	 * Constructor
+	 * @param loadSaved whether to load the events saved in "events.ser"
+	 */
+	public CalendarModel(boolean loadSaved) {
 		maxDays = cal.getActualMaximum(Calendar.DAY_OF_MONTH);
 		selectedDay = cal.get(Calendar.DATE);
-		loadEvents();
+		if (loadSaved) {
+			loadEvents();
+		}
+		monthCache = new MonthCache(this, PREFETCH_WINDOW, MONTH_CACHE_SIZE);
+		monthCache.prefetchAround(getCurrentYear(), getCurrentMonth());
 	}
 	
 	/**
@@ -111,6 +132,7 @@ public class CalendarModel{
 		maxDays = cal.getActualMaximum(Calendar.DAY_OF_MONTH);
 		monthChanged = true;
 		update();
+		monthCache.prefetchAround(getCurrentYear(), getCurrentMonth());
 	}
 	
 	/**
@@ -121,6 +143,7 @@ public class CalendarModel{
 		maxDays = cal.getActualMaximum(Calendar.DAY_OF_MONTH);
 		monthChanged = true;
 		update();
+		monthCache.prefetchAround(getCurrentYear(), getCurrentMonth());
 	}
 	
 	/**
@@ -147,6 +170,71 @@ public class CalendarModel{
 		update();
 	}
 	
+	/**
+	 * Gets the layout of the current month, from the cache when it has been prefetched.
+	 * @return the layout of the current month
+	 */
+	public MonthLayout getMonthLayout() {
+		shownLayout = monthCache.get(getCurrentYear(), getCurrentMonth());
+		return shownLayout;
+	}
+
+	/**
+	 * Gets the cache of month layouts.
+	 * @return the month cache
+	 */
+	public MonthCache getMonthCache() {
+		return monthCache;
+	}
+
+	/**
+	 * Lays out a month from the events currently scheduled. Only copying the
+	 * events holds the model lock; the strings are built after it is released,
+	 * so a background layout does not block the event dispatch thread.
+	 * @param year the year
+	 * @param month the month (0-11)
+	 * @return the layout of the month
+	 */
+	public MonthLayout layoutMonth(int year, int month) {
+		GregorianCalendar first = new GregorianCalendar(year, month, 1);
+		int days = first.getActualMaximum(Calendar.DAY_OF_MONTH);
+		ArrayList<ArrayList<Event>> snapshot = new ArrayList<>(days);
+		long changes;
+		synchronized (this) {
+			changes = getChangeCount(year, month);
+			for (int d = 1; d <= days; d++) {
+				ArrayList<Event> eventArray = eventMap.get(dateKey(year, month, d));
+				ArrayList<Event> copy = null;
+				if (eventArray != null) {
+					copy = new ArrayList<>(eventArray.size());
+					for (Event e : eventArray) {
+						copy.add(new Event(e.id, e.title, e.date, e.startTime, e.endTime));
+					}
+				}
+				snapshot.add(copy);
+			}
+		}
+		String[] dayEvents = new String[days];
+		for (int d = 1; d <= days; d++) {
+			if (snapshot.get(d - 1) != null) {
+				dayEvents[d - 1] = joinEvents(snapshot.get(d - 1));
+			}
+		}
+		return new MonthLayout(this, year, month, days, first.get(Calendar.DAY_OF_WEEK), dayEvents, changes);
+	}
+
+	/**
+	 * Gets the number of event changes made so far in a month, used to tell
+	 * whether a layout of that month was taken before a later change.
+	 * @param year the year
+	 * @param month the month (0-11)
+	 * @return the number of event changes in the month
+	 */
+	public synchronized long getChangeCount(int year, int month) {
+		Long changes = monthChanges.get(year * 12 + month);
+		return changes == null ? 0 : changes;
+	}
+
 	/**
 	 * Checks if the month has changed as a result of user interaction.
 	 * @return
@@ -167,24 +255,144 @@ public class CalendarModel{
 	 * @param title the title of the event
 	 * @param startTime the start time of the event
 	 * @param endTime the end time of the event
+	 * @return the id of the new event
+	 * @throws IllegalArgumentException if a time is not in format XX:XX
+	 */
+	public synchronized long createEvent(String title, String startTime, String endTime) {
+		checkTimes(startTime, endTime);
+		String date = dateKey(cal.get(Calendar.YEAR), cal.get(Calendar.MONTH), selectedDay);
+		Event e = new Event(nextEventId++, title, date, startTime, endTime);
+		addToDay(e);
+		eventIndex.put(e.id, e);
+		dayChanged(date);
+		return e.id;
+	}
+
+	/**
+	 * Changes the title and time of an event.
+	 * @param id the id of the event
+	 * @param title the new title of the event
+	 * @param startTime the new start time of the event
+	 * @param endTime the new end time of the event
+	 * @return whether the event exists
+	 * @throws IllegalArgumentException if a time is not in format XX:XX
 	 */
-	public void createEvent(String title, String startTime, String endTime) {
-		String date = (cal.get(Calendar.MONTH) + 1) + "/" + selectedDay + "/" + cal.get(Calendar.YEAR);
-		Event e = new Event(title, date, startTime, endTime);
-		ArrayList<Event> eventArray = new ArrayList<>();
-		if (hasEvent(e.date)) {
-			eventArray = eventMap.get(date);
+	public synchronized boolean updateEvent(long id, String title, String startTime, String endTime) {
+		checkTimes(startTime, endTime);
+		Event e = eventIndex.get(id);
+		if (e == null) {
+			return false;
+		}
+		if (e.startTime.equals(startTime)) {
+			e.title = title;
+			e.endTime = endTime;
+		} else {
+			removeFromDay(e);
+			e.title = title;
+			e.startTime = startTime;
+			e.endTime = endTime;
+			addToDay(e);
 		}
-		eventArray.add(e);
-		eventMap.put(date, eventArray);
+		dayChanged(e.date);
+		return true;
 	}
-	
+
+	/**
+	 * Moves an event to another date, keeping its time.
+	 * @param id the id of the event
+	 * @param year the new year
+	 * @param month the new month (0-11)
+	 * @param day the new day of the month
+	 * @return whether the event exists
+	 * @throws IllegalArgumentException if the date does not exist
+	 */
+	public synchronized boolean moveEvent(long id, int year, int month, int day) {
+		if (month < 0 || month > 11 || day < 1
+				|| day > new GregorianCalendar(year, month, 1).getActualMaximum(Calendar.DAY_OF_MONTH)) {
+			throw new IllegalArgumentException("No such date: " + (month + 1) + "/" + day + "/" + year);
+		}
+		Event e = eventIndex.get(id);
+		if (e == null) {
+			return false;
+		}
+		String date = dateKey(year, month, day);
+		removeFromDay(e);
+		dayChanged(e.date);
+		e.date = date;
+		addToDay(e);
+		dayChanged(date);
+		return true;
+	}
+
+	/**
+	 * Deletes an event.
+	 * @param id the id of the event
+	 * @return whether the event existed
+	 */
+	public synchronized boolean deleteEvent(long id) {
+		Event e = eventIndex.remove(id);
+		if (e == null) {
+			return false;
+		}
+		removeFromDay(e);
+		dayChanged(e.date);
+		return true;
+	}
+
+	/**
+	 * Deletes many events at once, touching each affected date only once.
+	 * @param ids the ids of the events
+	 * @return the number of events deleted
+	 */
+	public synchronized int deleteEvents(Collection<Long> ids) {
+		HashMap<String, HashSet<Event>> byDate = new HashMap<>();
+		for (Long id : ids) {
+			Event e = eventIndex.remove(id);
+			if (e == null) {
+				continue;
+			}
+			HashSet<Event> dayEvents = byDate.get(e.date);
+			if (dayEvents == null) {
+				dayEvents = new HashSet<>();
+				byDate.put(e.date, dayEvents);
+			}
+			dayEvents.add(e);
+		}
+		int deleted = 0;
+		for (String date : byDate.keySet()) {
+			HashSet<Event> dayEvents = byDate.get(date);
+			ArrayList<Event> eventArray = eventMap.get(date);
+			eventArray.removeAll(dayEvents);
+			if (eventArray.isEmpty()) {
+				eventMap.remove(date);
+			}
+			dayChanged(date);
+			deleted += dayEvents.size();
+		}
+		return deleted;
+	}
+
+	/**
+	 * Gets the ids of all events on a particular date, in order of start time.
+	 * @param date the date in format MM/DD/YYYY
+	 * @return the ids of the events on specified date
+	 */
+	public synchronized ArrayList<Long> getEventIds(String date) {
+		ArrayList<Long> ids = new ArrayList<>();
+		if (hasEvent(date)) {
+			for (Event e : eventMap.get(date)) {
+				ids.add(e.id);
+			}
+		}
+		return ids;
+	}
+
 	/**
 	 * Checks if specified date has any events scheduled.
 	 * @param date the selected date in format MM/DD/YYYY
 	 * @return if the date has an event
 	 */
-	public Boolean hasEvent(String date) {
+	public synchronized Boolean hasEvent(String date) {
 		return eventMap.containsKey(date);
 	}
 
@@ -194,15 +402,13 @@ public class CalendarModel{
 	 * @param timeEnd the end time of the new event
 	 * @return whether there is a conflict in time
 	 */
-	public Boolean hasEventConflict(String timeStart, String timeEnd) {
+	public synchronized Boolean hasEventConflict(String timeStart, String timeEnd) {
 		String date = (getCurrentMonth() + 1) + "/" + selectedDay + "/" + getCurrentYear();
 		if (!hasEvent(date)) {
 			return false;
 		}
 		
 		ArrayList<Event> eventArray = eventMap.get(date);
-		Collections.sort(eventArray, timeComparator());
-		
 		int timeStartMins = convertHourToMin(timeStart), timeEndMins = convertHourToMin(timeEnd);
 		for (Event e : eventArray) {
 			int eventStartTime = convertHourToMin(e.startTime), eventEndTime = convertHourToMin(e.endTime);
@@ -220,23 +426,26 @@ public class CalendarModel{
 	 * @param date the date to get events for
 	 * @return a string of all events on specified date
 	 */
-	public String getEvents(String date) {
-		ArrayList<Event> eventArray = eventMap.get(date);
-		Collections.sort(eventArray, timeComparator());
-		String events = "";
-		for (Event e : eventArray) {
-			events += e.toString() + "\n";
-		}
-		return events;
+	public synchronized String getEvents(String date) {
+		return joinEvents(eventMap.get(date));
+	}
+
+	/**
+	 * Gets a string of all events on a particular date.
+	 * @param year the year
+	 * @param month the month (0-11)
+	 * @param day the day of the month
+	 * @return a string of all events on specified date, empty if there are none
+	 */
+	public synchronized String getEvents(int year, int month, int day) {
+		String date = dateKey(year, month, day);
+		return hasEvent(date) ? getEvents(date) : "";
 	}
 	
 	/**
 	 * Saves all events to "events.ser".
 	 */
-	public void saveEvents() {
-		if (eventMap.isEmpty()) {
-			return;
-		}
+	public synchronized void saveEvents() {
 		try {
 			FileOutputStream fOut = new FileOutputStream("events.ser");
 			ObjectOutputStream oOut = new ObjectOutputStream(fOut);
@@ -257,11 +466,25 @@ public class CalendarModel{
 			FileInputStream fIn = new FileInputStream("events.ser");
 			ObjectInputStream oIn = new ObjectInputStream(fIn);
 			HashMap<String, ArrayList<Event>> temp = (HashMap<String, ArrayList<Event>>) oIn.readObject();
+			for (ArrayList<Event> eventArray : temp.values()) {
+				for (Event e : eventArray) {
+					nextEventId = Math.max(nextEventId, e.id + 1);
+				}
+			}
 			for (String date : temp.keySet()) {
+				for (Event e : temp.get(date)) {
+					// events saved before ids existed load with id 0
+					if (e.id == 0 || eventIndex.containsKey(e.id)) {
+						e.id = nextEventId++;
+					}
+					eventIndex.put(e.id, e);
+				}
 				if (hasEvent(date)) {
 					ArrayList<Event> eventArray = eventMap.get(date);
 					eventArray.addAll(temp.get(date));
+					Collections.sort(eventArray, timeComparator());
 				} else {
+					Collections.sort(temp.get(date), timeComparator());
 					eventMap.put(date, temp.get(date));
 				}
 			}
@@ -274,6 +497,112 @@ public class CalendarModel{
 		}
 	}
 	
+	/**
+	 * Adds an event to the list for its date, keeping the list ordered by start time.
+	 * @param e the event
+	 */
+	private void addToDay(Event e) {
+		ArrayList<Event> eventArray = eventMap.get(e.date);
+		if (eventArray == null) {
+			eventArray = new ArrayList<>();
+			eventMap.put(e.date, eventArray);
+		}
+		eventArray.add(insertionPoint(eventArray, e), e);
+	}
+
+	/**
+	 * Removes an event from the list for its date, dropping the date once it is empty.
+	 * @param e the event
+	 */
+	private void removeFromDay(Event e) {
+		ArrayList<Event> eventArray = eventMap.get(e.date);
+		int i = insertionPoint(eventArray, e) - 1;
+		while (eventArray.get(i) != e) {
+			i--;
+		}
+		eventArray.remove(i);
+		if (eventArray.isEmpty()) {
+			eventMap.remove(e.date);
+		}
+	}
+
+	/**
+	 * Binary searches for the index after the last event starting no later than e.
+	 * @param eventArray the events of a date, ordered by start time
+	 * @param e the event
+	 * @return the index to insert e at
+	 */
+	private static int insertionPoint(ArrayList<Event> eventArray, Event e) {
+		Comparator<Event> comparator = timeComparator();
+		int low = 0, high = eventArray.size();
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (comparator.compare(eventArray.get(mid), e) <= 0) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Records a change to the events of a date and marks that one day stale in
+	 * the cached layout of its month. The day's text is rebuilt only when the
+	 * view next shows it, so an edit stays independent of the day's size.
+	 * @param date the date in format MM/DD/YYYY
+	 */
+	private void dayChanged(String date) {
+		String[] parts = date.split("/");
+		int year = Integer.parseInt(parts[2]), month = Integer.parseInt(parts[0]) - 1;
+		monthChanges.put(year * 12 + month, getChangeCount(year, month) + 1);
+		monthCache.updateDay(year, month, Integer.parseInt(parts[1]), hasEvent(date));
+		// the layout last handed out may have been evicted from the cache since
+		if (shownLayout != null && shownLayout.getYear() == year && shownLayout.getMonth() == month) {
+			shownLayout.markDay(Integer.parseInt(parts[1]), hasEvent(date));
+		}
+	}
+
+	/**
+	 * Joins events into one string, one event per line.
+	 * @param eventArray the events, ordered by start time
+	 * @return a string of all the events
+	 */
+	private static String joinEvents(ArrayList<Event> eventArray) {
+		StringBuilder events = new StringBuilder();
+		for (Event e : eventArray) {
+			events.append(e).append("\n");
+		}
+		return events.toString();
+	}
+
+	/**
+	 * Builds the key events are stored under for a date.
+	 * @param year the year
+	 * @param month the month (0-11)
+	 * @param day the day of the month
+	 * @return the date in format MM/DD/YYYY
+	 */
+	private static String dateKey(int year, int month, int day) {
+		return (month + 1) + "/" + day + "/" + year;
+	}
+
+	/**
+	 * Checks that event times are in format XX:XX before anything is changed,
+	 * since the day lists cannot be ordered by malformed times.
+	 * @param startTime the start time, 00:00 to 23:59
+	 * @param endTime the end time, 00:00 to 24:00
+	 * @throws IllegalArgumentException if a time is malformed
+	 */
+	private static void checkTimes(String startTime, String endTime) {
+		if (startTime == null || !startTime.matches("([01][0-9]|2[0-3]):[0-5][0-9]")) {
+			throw new IllegalArgumentException("Bad start time: " + startTime);
+		}
+		if (endTime == null || !endTime.matches("([01][0-9]|2[0-3]):[0-5][0-9]|24:00")) {
+			throw new IllegalArgumentException("Bad end time: " + endTime);
+		}
+	}
+
 	/**
 	 * Converts 24:00 time to minutes
 	 * @param time the time in 24 hour format
@@ -301,11 +630,12 @@ public class CalendarModel{
 	}
 	
 	/**
-	 * Event object containing event title, date, and time.
+	 * Event object containing event id, title, date, and time.
 	 */
 	private static class Event implements Serializable {
 
 		private static final long serialVersionUID = -6030371583841330976L;
+		private long id;
 		private String title;
 		private String date;
 		private String startTime;
@@ -313,12 +643,14 @@ public class CalendarModel{
 
 		/**
 		 * Constructor
+		 * @param id the id of the event
 		 * @param title the title of the event
 		 * @param date the date of the event
 		 * @param startTime the start time of the event
 		 * @param endTime the end time of the event
 		 */
-		private Event(String title, String date, String startTime, String endTime) {
+		private Event(long id, String title, String date, String startTime, String endTime) {
+			this.id = id;
 			this.title = title;
 			this.date = date;
 			this.startTime = startTime;
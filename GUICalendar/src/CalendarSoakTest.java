@@ -0,0 +1,422 @@
+import java.awt.GraphicsEnvironment;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Collections;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import javax.swing.SwingUtilities;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+/**
+ * Soak tester for Calendar. Drives CalendarModel and CalendarView with scripted
+ * workloads on a synthetic calendar and reports how responsive the event dispatch
+ * thread stays. The calendar starts from an empty store, so saved events do not
+ * skew the results. Needs a display, so run it under a virtual one when headless:
+ * xvfb-run java CalendarSoakTest [months] [eventsPerDay] [iterations] [prefetchWindow]
+ */
+public class CalendarSoakTest {
+
+	private static final int DEFAULT_MONTHS = 24;
+	private static final int DEFAULT_EVENTS_PER_DAY = 16;
+	private static final int DEFAULT_ITERATIONS = 300;
+	private static final int DEFAULT_PREFETCH_WINDOW = 1;
+	private static final long PROBE_INTERVAL_MS = 2;
+	private static final Runnable NO_OP = new Runnable() {
+
+		@Override
+		public void run() {
+		}
+	};
+
+	private final int months;
+	private final int eventsPerDay;
+	private final int iterations;
+	private final int prefetchWindow;
+	private CalendarModel model;
+	private CalendarView view;
+	private int firstMonth;
+	private long edtThreadId;
+	private volatile boolean probing;
+	private long longestGcPause;
+	private final ArrayList<Long> probeSamples = new ArrayList<>();
+
+	public static void main(String[] args) throws Exception {
+		if (GraphicsEnvironment.isHeadless()) {
+			System.out.println("No display available. Run under a virtual display, e.g. xvfb-run java CalendarSoakTest");
+			System.exit(1);
+		}
+		int months = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_MONTHS;
+		int eventsPerDay = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_EVENTS_PER_DAY;
+		int iterations = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_ITERATIONS;
+		int prefetchWindow = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_PREFETCH_WINDOW;
+
+		CalendarSoakTest test = new CalendarSoakTest(months, eventsPerDay, iterations, prefetchWindow);
+		test.listenForGcPauses();
+		test.setUp();
+		test.runMonthFlips();
+		test.runDaySweep();
+		test.runCreateBurst();
+		System.exit(0);
+	}
+
+	/**
+	 * Constructor
+	 * @param months the number of months to fill with synthetic events, at least two
+	 * @param eventsPerDay the number of events on each synthetic day
+	 * @param iterations the number of operations per workload
+	 * @param prefetchWindow the number of months prefetched on each side of the current month
+	 */
+	public CalendarSoakTest(int months, int eventsPerDay, int iterations, int prefetchWindow) {
+		this.months = Math.max(2, months);
+		this.eventsPerDay = Math.max(0, Math.min(eventsPerDay, 24 * 60));
+		this.iterations = Math.max(1, iterations);
+		this.prefetchWindow = prefetchWindow;
+	}
+
+	/**
+	 * Builds the synthetic calendar and opens the view on the event dispatch thread.
+	 */
+	public void setUp() throws InvocationTargetException, InterruptedException {
+		long start = System.nanoTime();
+		SwingUtilities.invokeAndWait(new Runnable() {
+
+			@Override
+			public void run() {
+				edtThreadId = Thread.currentThread().getId();
+				model = new CalendarModel(false);
+				model.getMonthCache().setWindow(prefetchWindow);
+				firstMonth = model.getCurrentYear() * 12 + model.getCurrentMonth();
+				for (int m = 0; m < months; m++) {
+					for (int d = 1; d <= model.getMaxDays(); d++) {
+						model.setSelectedDate(d);
+						for (int k = 0; k < eventsPerDay; k++) {
+							model.createEvent("Synthetic " + k, slotTime(k, eventsPerDay), slotTime(k + 1, eventsPerDay));
+						}
+					}
+					model.nextMonth();
+				}
+				for (int m = 0; m < months; m++) {
+					model.prevMonth();
+				}
+				model.resetHasMonthChanged();
+				model.setSelectedDate(1);
+				view = new CalendarView(model);
+				model.attach(view);
+			}
+		});
+		System.out.printf("Synthetic calendar: %d months, %d events/day, prefetch window %d, built in %.1f ms%n",
+				months, eventsPerDay, prefetchWindow, (System.nanoTime() - start) / 1e6);
+	}
+
+	/**
+	 * Flips back and forth across the synthetic months, starting from the first one.
+	 */
+	public void runMonthFlips() throws InvocationTargetException, InterruptedException {
+		moveTo(0, 1);
+		runWorkload("nextMonth/prevMonth", new Runnable() {
+			private boolean forward = true;
+
+			@Override
+			public void run() {
+				if (monthOffset() == months - 1) {
+					forward = false;
+				} else if (monthOffset() == 0) {
+					forward = true;
+				}
+				if (forward) {
+					model.nextMonth();
+				} else {
+					model.prevMonth();
+				}
+			}
+		});
+	}
+
+	/**
+	 * Sweeps the selected day across the synthetic months, crossing month
+	 * boundaries, starting from the first synthetic day and turning back at
+	 * either end.
+	 */
+	public void runDaySweep() throws InvocationTargetException, InterruptedException {
+		moveTo(0, 1);
+		runWorkload("nextDay/prevDay sweep", new Runnable() {
+			private boolean forward = true;
+
+			@Override
+			public void run() {
+				if (monthOffset() == months - 1 && model.getSelectedDay() == model.getMaxDays()) {
+					forward = false;
+				} else if (monthOffset() == 0 && model.getSelectedDay() == 1) {
+					forward = true;
+				}
+				if (forward) {
+					model.nextDay();
+				} else {
+					model.prevDay();
+				}
+			}
+		});
+	}
+
+	/**
+	 * Creates a burst of events on the first synthetic day, checking for
+	 * conflicts first the way the create dialog does.
+	 */
+	public void runCreateBurst() throws InvocationTargetException, InterruptedException {
+		moveTo(0, 1);
+		runWorkload("createEvent burst", new Runnable() {
+			private int step = 0;
+
+			@Override
+			public void run() {
+				String startTime = slotTime(step % 96, 96), endTime = slotTime(step % 96 + 1, 96);
+				model.hasEventConflict(startTime, endTime);
+				model.createEvent("Burst " + step++, startTime, endTime);
+				model.update();
+			}
+		});
+	}
+
+	/**
+	 * Navigates to a synthetic month and day, so each workload starts from a known
+	 * place no matter which workload ran before it.
+	 * @param offset the synthetic month, counted from the first one
+	 * @param day the day of the month
+	 */
+	private void moveTo(final int offset, final int day) throws InvocationTargetException, InterruptedException {
+		SwingUtilities.invokeAndWait(new Runnable() {
+
+			@Override
+			public void run() {
+				while (monthOffset() < offset) {
+					model.nextMonth();
+				}
+				while (monthOffset() > offset) {
+					model.prevMonth();
+				}
+				model.setSelectedDate(day);
+				model.update();
+			}
+		});
+	}
+
+	/**
+	 * Gets the synthetic month the calendar is at.
+	 * @return the number of months since the first synthetic month
+	 */
+	private int monthOffset() {
+		return model.getCurrentYear() * 12 + model.getCurrentMonth() - firstMonth;
+	}
+
+	/**
+	 * Runs an action on the event dispatch thread repeatedly and prints latency,
+	 * GC and allocation figures for the run. Each operation is timed until the
+	 * layout and repaint work it queued has been dispatched as well.
+	 * @param name the name of the workload
+	 * @param action the operation to run on the event dispatch thread
+	 */
+	private void runWorkload(String name, Runnable action) throws InvocationTargetException, InterruptedException {
+		long[] latencies = new long[iterations];
+		long gcCount = gcCount(), gcTime = gcTime(), allocated = edtAllocatedBytes();
+		takeLongestGcPause();
+		MonthCache cache = model.getMonthCache();
+		long hits = cache.getHits(), misses = cache.getMisses();
+		Thread probe = startProbe();
+		long start = System.nanoTime();
+		for (int i = 0; i < iterations; i++) {
+			long opStart = System.nanoTime();
+			SwingUtilities.invokeAndWait(action);
+			SwingUtilities.invokeAndWait(NO_OP);
+			latencies[i] = System.nanoTime() - opStart;
+		}
+		long elapsed = System.nanoTime() - start;
+		probing = false;
+		probe.join();
+		long allocatedAfter = edtAllocatedBytes();
+
+		long[] dispatch;
+		synchronized (probeSamples) {
+			dispatch = new long[probeSamples.size()];
+			for (int i = 0; i < dispatch.length; i++) {
+				dispatch[i] = probeSamples.get(i);
+			}
+			probeSamples.clear();
+		}
+
+		System.out.printf("%n%s: %d ops in %.1f ms%n", name, iterations, elapsed / 1e6);
+		System.out.println("  op latency      " + percentiles(latencies));
+		System.out.println("  EDT dispatch    " + percentiles(dispatch));
+		System.out.printf("  GC              %d collections, %d ms, longest pause %d ms%n",
+				gcCount() - gcCount, gcTime() - gcTime, takeLongestGcPause());
+		System.out.printf("  month cache     %d hits, %d misses%n", cache.getHits() - hits, cache.getMisses() - misses);
+		if (allocated < 0 || allocatedAfter < 0) {
+			System.out.println("  EDT allocation  unavailable on this JVM");
+		} else {
+			double mb = (allocatedAfter - allocated) / (1024.0 * 1024.0);
+			System.out.printf("  EDT allocation  %.1f MB (%.1f MB/s)%n", mb, mb / (elapsed / 1e9));
+		}
+	}
+
+	/**
+	 * Starts a thread that keeps posting empty events to the event dispatch thread
+	 * and records how long each one waits before it is dispatched.
+	 * @return the probe thread
+	 */
+	private Thread startProbe() {
+		probing = true;
+		Thread probe = new Thread(new Runnable() {
+
+			@Override
+			public void run() {
+				while (probing) {
+					final long posted = System.nanoTime();
+					try {
+						SwingUtilities.invokeAndWait(new Runnable() {
+
+							@Override
+							public void run() {
+								long waited = System.nanoTime() - posted;
+								synchronized (probeSamples) {
+									probeSamples.add(waited);
+								}
+							}
+						});
+						Thread.sleep(PROBE_INTERVAL_MS);
+					} catch (InterruptedException | InvocationTargetException ex) {
+						return;
+					}
+				}
+			}
+		}, "EDT probe");
+		probe.setDaemon(true);
+		probe.start();
+		return probe;
+	}
+
+	/**
+	 * Formats the percentiles of a set of samples.
+	 * @param samples the samples in nanoseconds
+	 * @return the percentiles in milliseconds
+	 */
+	private static String percentiles(long[] samples) {
+		if (samples.length == 0) {
+			return "no samples";
+		}
+		ArrayList<Long> sorted = new ArrayList<>();
+		for (long s : samples) {
+			sorted.add(s);
+		}
+		Collections.sort(sorted);
+		return String.format("p50=%.2f p90=%.2f p99=%.2f max=%.2f ms (n=%d)",
+				percentile(sorted, 50), percentile(sorted, 90), percentile(sorted, 99),
+				sorted.get(sorted.size() - 1) / 1e6, sorted.size());
+	}
+
+	/**
+	 * Gets a percentile from sorted samples using the nearest rank.
+	 * @param sorted the samples in nanoseconds, sorted ascending
+	 * @param p the percentile (0-100)
+	 * @return the percentile in milliseconds
+	 */
+	private static double percentile(ArrayList<Long> sorted, int p) {
+		int rank = (int) Math.ceil(p / 100.0 * sorted.size());
+		return sorted.get(Math.max(0, rank - 1)) / 1e6;
+	}
+
+	/**
+	 * Gets the time of a slot when a day is divided into equal slots.
+	 * @param slot the slot index
+	 * @param slots the number of slots in the day
+	 * @return the time in format XX:XX
+	 */
+	private static String slotTime(int slot, int slots) {
+		int mins = slot * (24 * 60) / slots;
+		return String.format("%02d:%02d", mins / 60, mins % 60);
+	}
+
+	/**
+	 * Listens for garbage collections and remembers the longest pause. Collectors
+	 * that run concurrently with the application are skipped, since their
+	 * durations are not pauses.
+	 */
+	private void listenForGcPauses() {
+		NotificationListener listener = new NotificationListener() {
+
+			@Override
+			public void handleNotification(Notification n, Object handback) {
+				if (!n.getType().equals(GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION)) {
+					return;
+				}
+				GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from((CompositeData) n.getUserData());
+				if (info.getGcName().contains("Concurrent") || info.getGcName().contains("Cycles")) {
+					return;
+				}
+				synchronized (CalendarSoakTest.this) {
+					longestGcPause = Math.max(longestGcPause, info.getGcInfo().getDuration());
+				}
+			}
+		};
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			if (gc instanceof NotificationEmitter) {
+				((NotificationEmitter) gc).addNotificationListener(listener, null, null);
+			}
+		}
+	}
+
+	/**
+	 * Gets the longest garbage collection pause seen since the last call and resets it.
+	 * @return the longest pause in milliseconds
+	 */
+	private synchronized long takeLongestGcPause() {
+		long pause = longestGcPause;
+		longestGcPause = 0;
+		return pause;
+	}
+
+	/**
+	 * Gets the total number of collections across all garbage collectors.
+	 * @return the collection count
+	 */
+	private static long gcCount() {
+		long count = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			count += Math.max(0, gc.getCollectionCount());
+		}
+		return count;
+	}
+
+	/**
+	 * Gets the total time spent in all garbage collectors.
+	 * @return the collection time in milliseconds
+	 */
+	private static long gcTime() {
+		long time = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			time += Math.max(0, gc.getCollectionTime());
+		}
+		return time;
+	}
+
+	/**
+	 * Gets the bytes allocated so far by the event dispatch thread.
+	 * @return the allocated bytes, or -1 if the JVM does not track them
+	 */
+	private long edtAllocatedBytes() {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+			return -1;
+		}
+		com.sun.management.ThreadMXBean sunThreads = (com.sun.management.ThreadMXBean) threads;
+		if (!sunThreads.isThreadAllocatedMemorySupported() || !sunThreads.isThreadAllocatedMemoryEnabled()) {
+			return -1;
+		}
+		return sunThreads.getThreadAllocatedBytes(edtThreadId);
+	}
+}
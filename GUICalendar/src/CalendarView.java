@@ -36,6 +36,7 @@ public class CalendarView implements ChangeListener {
 	private MONTHS[] arrayOfMonths = MONTHS.values();
 	private int prevHighlight = -1;
 	private int maxDays;
+	private MonthLayout layout;
 
 	private JFrame frame = new JFrame("Calendar");
 	private JPanel monthViewPanel = new JPanel();
@@ -57,6 +58,7 @@ public class CalendarView implements ChangeListener {
 		dayTextPane.setPreferredSize(new Dimension(300, 150));
 		dayTextPane.setEditable(false);
 
+		layout = model.getMonthLayout();
 		createDayBtns();
 		addBlankBtns();
 		addDayBtns();
@@ -158,6 +160,7 @@ public class CalendarView implements ChangeListener {
 	@Override
 	public void stateChanged(ChangeEvent e) {
 		if (model.hasMonthChanged()) {
+			layout = model.getMonthLayout();
 			maxDays = model.getMaxDays();
 			dayBtns.clear();
 			monthViewPanel.removeAll();
@@ -279,13 +282,9 @@ public class CalendarView implements ChangeListener {
 	 */
 	private void showDate(final int d) {
 		model.setSelectedDate(d);
-		String dayOfWeek = arrayOfDays[model.getDayOfWeek(d) - 1] + "";
+		String dayOfWeek = arrayOfDays[layout.getDayOfWeek(d) - 1] + "";
 		String date = (model.getCurrentMonth() + 1) + "/" + d + "/" + model.getCurrentYear();
-		String events = "";
-		if (model.hasEvent(date)) {
-			events += model.getEvents(date);
-		}
-		dayTextPane.setText(dayOfWeek + " " + date + "\n" + events);
+		dayTextPane.setText(dayOfWeek + " " + date + "\n" + layout.getEvents(d));
 		dayTextPane.setCaretPosition(0);
 	}
 
@@ -307,7 +306,7 @@ public class CalendarView implements ChangeListener {
 	 */
 	private void highlightEvents() {
 		for (int i = 1; i <= maxDays; i++) {
-			if (model.hasEvent((model.getCurrentMonth() + 1) + "/" + i + "/" + model.getCurrentYear())) {
+			if (layout.hasEvent(i)) {
 				dayBtns.get(i - 1).setBackground(Color.decode("0xE4EFF8"));
 			}
 		}
@@ -350,7 +349,7 @@ public class CalendarView implements ChangeListener {
 	 * Adds filler buttons before the start of the month to align calendar.
 	 */
 	private void addBlankBtns() {
-		for (int j = 1; j < model.getDayOfWeek(1); j++) {
+		for (int j = 1; j < layout.getFirstDayOfWeek(); j++) {
 			JButton blank = new JButton();
 			blank.setEnabled(false);
 			monthViewPanel.add(blank);
@@ -0,0 +1,180 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Small LRU cache of month layouts. After each navigation the months around
+ * the current one are laid out on a background thread, so flipping months
+ * is served from the cache instead of being computed on click.
+ */
+public class MonthCache {
+
+	private final CalendarModel model;
+	private int window;
+	private int capacity;
+	private long hits;
+	private long misses;
+	private final LinkedHashMap<Integer, MonthLayout> layouts = new LinkedHashMap<Integer, MonthLayout>(16, 0.75f, true) {
+
+		private static final long serialVersionUID = 4212863317563908437L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Integer, MonthLayout> eldest) {
+			return size() > capacity;
+		}
+	};
+	private final ExecutorService prefetcher = Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "Month prefetcher");
+			t.setDaemon(true);
+			return t;
+		}
+	});
+
+	/**
+	 * Constructor
+	 * @param model the model to lay out months from
+	 * @param window the number of months to prefetch on each side of the current month
+	 * @param capacity the maximum number of months kept
+	 */
+	public MonthCache(CalendarModel model, int window, int capacity) {
+		this.model = model;
+		this.capacity = capacity;
+		setWindow(window);
+	}
+
+	/**
+	 * Sets the number of months prefetched on each side of the current month,
+	 * growing the cache if it could not hold them all.
+	 * @param window the prefetch window
+	 */
+	public synchronized void setWindow(int window) {
+		this.window = Math.max(0, window);
+		capacity = Math.max(capacity, 2 * this.window + 1);
+	}
+
+	/**
+	 * Gets the layout of a month, laying it out on the calling thread if it is not cached.
+	 * @param year the year
+	 * @param month the month (0-11)
+	 * @return the layout of the month
+	 */
+	public MonthLayout get(int year, int month) {
+		synchronized (this) {
+			MonthLayout layout = layouts.get(key(year, month));
+			if (layout != null) {
+				hits++;
+				return layout;
+			}
+			misses++;
+		}
+		return load(year, month);
+	}
+
+	/**
+	 * Queues a month and the months around it to be laid out in the background.
+	 * @param year the year
+	 * @param month the month (0-11)
+	 */
+	public void prefetchAround(int year, int month) {
+		int center = key(year, month);
+		int w;
+		synchronized (this) {
+			w = window;
+		}
+		prefetch(center);
+		for (int i = 1; i <= w; i++) {
+			prefetch(center + i);
+			prefetch(center - i);
+		}
+	}
+
+	/**
+	 * Marks one day of a cached month as changed.
+	 * @param year the year
+	 * @param month the month (0-11)
+	 * @param day the day of the month
+	 * @param hasEvents whether the day still has events
+	 */
+	public synchronized void updateDay(int year, int month, int day, boolean hasEvents) {
+		MonthLayout layout = layouts.get(key(year, month));
+		if (layout != null) {
+			layout.markDay(day, hasEvents);
+		}
+	}
+
+	/**
+	 * Gets the number of lookups served from the cache.
+	 * @return the number of hits
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * Gets the number of lookups that had to lay the month out on the spot.
+	 * @return the number of misses
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Queues a month to be laid out in the background unless it is already cached.
+	 * @param key the month key
+	 */
+	private void prefetch(final int key) {
+		prefetcher.execute(new Runnable() {
+
+			@Override
+			public void run() {
+				synchronized (MonthCache.this) {
+					if (layouts.containsKey(key)) {
+						return;
+					}
+				}
+				load(key / 12, key % 12);
+			}
+		});
+	}
+
+	/**
+	 * Lays out a month and caches it. If an event in the month changed while it
+	 * was being built, the layout is not stored and the month is queued again.
+	 * A layout already cached is kept, since the view may be holding it.
+	 * @param year the year
+	 * @param month the month (0-11)
+	 * @return the layout of the month
+	 */
+	private MonthLayout load(int year, int month) {
+		MonthLayout layout = model.layoutMonth(year, month);
+		synchronized (model) {
+			if (layout.getChangeCount() != model.getChangeCount(year, month)) {
+				prefetch(key(year, month));
+				return layout;
+			}
+			synchronized (this) {
+				MonthLayout cached = layouts.get(key(year, month));
+				if (cached != null) {
+					return cached;
+				}
+				layouts.put(key(year, month), layout);
+			}
+		}
+		return layout;
+	}
+
+	/**
+	 * Gets the cache key of a month.
+	 * @param year the year
+	 * @param month the month (0-11)
+	 * @return the number of months since year 0
+	 */
+	private static int key(int year, int month) {
+		return year * 12 + month;
+	}
+}
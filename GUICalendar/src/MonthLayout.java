@@ -0,0 +1,119 @@
+/**
+ * Snapshot of everything the month view needs to draw one month. Days whose
+ * events changed after the snapshot are marked stale and their text is read
+ * from the model again the first time it is needed.
+ */
+public class MonthLayout {
+
+	private final CalendarModel model;
+
+	private final int year;
+	private final int month;
+	private final int maxDays;
+	private final int firstDayOfWeek;
+	private final String[] dayEvents;
+	private final boolean[] stale;
+	private final long changeCount;
+
+	/**
+	 * Constructor
+	 * @param model the model to read stale days from
+	 * @param year the year
+	 * @param month the month (0-11)
+	 * @param maxDays the number of days in the month
+	 * @param firstDayOfWeek the day of the week the month starts on (1-7)
+	 * @param dayEvents the events of each day as a string, or null for days without events
+	 * @param changeCount the model's change count when the events were read
+	 */
+	public MonthLayout(CalendarModel model, int year, int month, int maxDays, int firstDayOfWeek, String[] dayEvents, long changeCount) {
+		this.model = model;
+		this.year = year;
+		this.month = month;
+		this.maxDays = maxDays;
+		this.firstDayOfWeek = firstDayOfWeek;
+		this.dayEvents = dayEvents;
+		this.stale = new boolean[maxDays];
+		this.changeCount = changeCount;
+	}
+
+	/**
+	 * Marks the events of one day as changed.
+	 * @param day the day of the month
+	 * @param hasEvents whether the day still has events
+	 */
+	public void markDay(int day, boolean hasEvents) {
+		dayEvents[day - 1] = null;
+		stale[day - 1] = hasEvents;
+	}
+
+	/**
+	 * Gets the model's change count when the events of this layout were read.
+	 * @return the change count
+	 */
+	public long getChangeCount() {
+		return changeCount;
+	}
+
+	/**
+	 * Gets the year of the month.
+	 * @return the year
+	 */
+	public int getYear() {
+		return year;
+	}
+
+	/**
+	 * Gets the month.
+	 * @return the month (0-11)
+	 */
+	public int getMonth() {
+		return month;
+	}
+
+	/**
+	 * Gets the number of days in the month.
+	 * @return the number of days in the month
+	 */
+	public int getMaxDays() {
+		return maxDays;
+	}
+
+	/**
+	 * Gets the day of the week the month starts on.
+	 * @return the day of the week (1-7)
+	 */
+	public int getFirstDayOfWeek() {
+		return firstDayOfWeek;
+	}
+
+	/**
+	 * Gets the value representing the day of the week.
+	 * @param day the day of the month
+	 * @return the day of the week (1-7)
+	 */
+	public int getDayOfWeek(int day) {
+		return (firstDayOfWeek - 1 + day - 1) % 7 + 1;
+	}
+
+	/**
+	 * Checks if a day has any events scheduled.
+	 * @param day the day of the month
+	 * @return if the day has an event
+	 */
+	public boolean hasEvent(int day) {
+		return stale[day - 1] || dayEvents[day - 1] != null;
+	}
+
+	/**
+	 * Gets a string of all events on a day.
+	 * @param day the day of the month
+	 * @return a string of all events on the day, empty if there are none
+	 */
+	public String getEvents(int day) {
+		if (stale[day - 1]) {
+			dayEvents[day - 1] = model.getEvents(year, month, day);
+			stale[day - 1] = false;
+		}
+		return hasEvent(day) ? dayEvents[day - 1] : "";
+	}
+}